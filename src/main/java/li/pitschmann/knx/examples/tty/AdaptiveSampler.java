@@ -0,0 +1,166 @@
+/*
+ * KNX Link - A library for KNX Net/IP communication
+ * Copyright (C) 2020 Pitschmann Christoph
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package li.pitschmann.knx.examples.tty;
+
+import static li.pitschmann.knx.examples.tty.KnxAddresses.ADDRESS_SPACE;
+
+/**
+ * Adaptive Sampler for the {@link MonitorPlugin}
+ * <p>
+ * Measures the arrival rate of telegrams against the render capacity of the terminal. When
+ * the terminal falls behind (arrival rate above the render capacity with some headroom, or
+ * above the configured maximum rows per second), only a sample of telegrams will be displayed: per destination
+ * address every N-th telegram (1-in-N), so that rare addresses remain visible while
+ * chatty addresses are thinned out. When the arrival rate drops, the ratio is stepped
+ * down until full fidelity is restored.
+ * <p>
+ * The sampler decides about the display only; telegrams are still counted exactly.
+ *
+ * @author PITSCHR
+ */
+final class AdaptiveSampler {
+    /**
+     * Only this fraction of measured render capacity is used, to leave headroom for the
+     * rest of processing and for slower terminal output (e.g. remote sessions)
+     */
+    private static final double RENDER_HEADROOM = 0.5;
+    /**
+     * Weight of latest measurement for smoothing the render capacity
+     */
+    private static final double RENDER_CAPACITY_WEIGHT = 0.3;
+    /**
+     * Counter per destination address, indexed by raw address; group addresses
+     * in lower half and individual addresses in upper half
+     */
+    private final int[] addressCounters = new int[ADDRESS_SPACE * 2];
+    private final int maxRowsPerSecond;
+    private long lastUpdateNanos = System.nanoTime();
+    private long arrivals;
+    private long displayed;
+    private long renderedRows;
+    private long renderNanos;
+    private long lastArrivals;
+    /**
+     * Smoothed render capacity of terminal in rows per second; {@code 0} if not measured yet
+     */
+    private double renderCapacity;
+    private volatile int ratio = 1;
+
+    /**
+     * Creates a new instance of {@link AdaptiveSampler}
+     *
+     * @param maxRowsPerSecond upper limit of rows per second that should be displayed, must be positive
+     */
+    AdaptiveSampler(final int maxRowsPerSecond) {
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    /**
+     * Registers the arrival of telegram for given destination address and returns if it
+     * should be displayed.
+     *
+     * @param destinationIndex index of destination address, see {@link KnxAddresses#toDestinationIndex}
+     * @return {@code true} if the telegram should be displayed, otherwise {@code false}
+     */
+    synchronized boolean shouldDisplay(final int destinationIndex) {
+        arrivals++;
+        final var count = addressCounters[destinationIndex]++ & Integer.MAX_VALUE;
+        if (ratio == 1 || count % ratio == 0) {
+            displayed++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Registers the time that was spent for rendering one row
+     *
+     * @param nanos time spent in nanoseconds
+     */
+    synchronized void recordRender(final long nanos) {
+        renderedRows++;
+        renderNanos += nanos;
+    }
+
+    /**
+     * Re-calculates the sampling ratio based on arrival rate and render capacity since last update.
+     * This method is expected to be invoked regularly (e.g. every second).
+     */
+    synchronized void update() {
+        final var now = System.nanoTime();
+        final var elapsedSeconds = Math.max(now - lastUpdateNanos, 1L) / 1_000_000_000d;
+        final var arrivalRate = (arrivals - lastArrivals) / elapsedSeconds;
+
+        // render capacity of terminal (rows per second) measured from rendered rows; the last
+        // capacity is kept when no rows were rendered (e.g. no traffic)
+        if (renderedRows > 0 && renderNanos > 0) {
+            final var measuredCapacity = renderedRows * 1_000_000_000d / renderNanos;
+            renderCapacity = renderCapacity == 0
+                    ? measuredCapacity
+                    : (1 - RENDER_CAPACITY_WEIGHT) * renderCapacity + RENDER_CAPACITY_WEIGHT * measuredCapacity;
+        }
+
+        // terminal falls behind when arrival rate exceeds the render capacity (with headroom)
+        // or the maximum rows per second
+        var targetRate = (double) maxRowsPerSecond;
+        if (renderCapacity > 0) {
+            targetRate = Math.min(targetRate, renderCapacity * RENDER_HEADROOM);
+        }
+
+        final var newRatio = Math.max(1, (int) Math.ceil(arrivalRate / targetRate));
+        if (newRatio >= ratio) {
+            ratio = newRatio;
+        } else {
+            // step down gradually to avoid flapping between sampling and full fidelity
+            ratio = Math.max(newRatio, ratio / 2);
+        }
+
+        lastUpdateNanos = now;
+        lastArrivals = arrivals;
+        renderedRows = 0;
+        renderNanos = 0;
+    }
+
+    /**
+     * Returns the current sampling ratio
+     *
+     * @return ratio {@code N} for 1-in-N sampling; {@code 1} means full fidelity
+     */
+    int getRatio() {
+        return ratio;
+    }
+
+    /**
+     * Returns the number of telegrams that have been arrived
+     *
+     * @return total number of arrivals
+     */
+    synchronized long getArrivals() {
+        return arrivals;
+    }
+
+    /**
+     * Returns the number of telegrams that have been displayed
+     *
+     * @return total number of displayed telegrams
+     */
+    synchronized long getDisplayed() {
+        return displayed;
+    }
+}
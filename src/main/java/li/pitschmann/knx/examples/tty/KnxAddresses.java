@@ -0,0 +1,85 @@
+/*
+ * KNX Link - A library for KNX Net/IP communication
+ * Copyright (C) 2020 Pitschmann Christoph
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package li.pitschmann.knx.examples.tty;
+
+import li.pitschmann.knx.core.address.GroupAddress;
+import li.pitschmann.knx.core.address.KnxAddress;
+import li.pitschmann.knx.core.annotations.Nullable;
+import li.pitschmann.knx.core.knxproj.XmlProject;
+
+/**
+ * Helper for raw 16-bit KNX addresses, which are used as index of
+ * primitive arrays by the {@link MonitorPlugin} and its aggregates.
+ *
+ * @author PITSCHR
+ */
+final class KnxAddresses {
+    /**
+     * Number of possible addresses (16-bit) per address type
+     */
+    static final int ADDRESS_SPACE = 0x10000;
+
+    private KnxAddresses() {
+        throw new AssertionError("Do not touch me!");
+    }
+
+    /**
+     * Returns the raw 16-bit value of given {@link KnxAddress}
+     *
+     * @param address the address
+     * @return raw value of address, between {@code 0} and {@code 65535}
+     */
+    static int toRawAddress(final KnxAddress address) {
+        final var bytes = address.toByteArray();
+        return ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+    }
+
+    /**
+     * Returns the index of given destination address for arrays of size {@code 2 * ADDRESS_SPACE};
+     * group addresses are in lower half and individual addresses in upper half
+     *
+     * @param address the destination address
+     * @return index of destination address
+     */
+    static int toDestinationIndex(final KnxAddress address) {
+        return toRawAddress(address) + (address instanceof GroupAddress ? 0 : ADDRESS_SPACE);
+    }
+
+    /**
+     * Returns the group address in project style (if available) for given raw value
+     *
+     * @param xmlProject the {@link XmlProject}; may be {@code null}
+     * @param raw        raw value of group address
+     * @return formatted group address
+     */
+    static String formatGroupAddress(final @Nullable XmlProject xmlProject, final int raw) {
+        final var groupAddress = GroupAddress.of((raw >>> 11) & 0x1F, (raw >>> 8) & 0x07, raw & 0xFF);
+        return xmlProject == null ? groupAddress.getAddress() : xmlProject.getGroupAddressStyle().toString(groupAddress);
+    }
+
+    /**
+     * Returns the individual address in {@code area.line.device} format for given raw value
+     *
+     * @param raw raw value of individual address
+     * @return formatted individual address
+     */
+    static String formatIndividualAddress(final int raw) {
+        return String.format("%d.%d.%d", (raw >>> 12) & 0x0F, (raw >>> 8) & 0x0F, raw & 0xFF);
+    }
+}
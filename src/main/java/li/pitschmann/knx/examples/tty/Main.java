@@ -92,6 +92,30 @@ public class Main {
         final var generateFakeData = existsParameter(args, "-g,--generate-fake-data");
         log.debug("Generate Fake Data?: {}", generateFakeData);
 
+        // Get Session Summary Path
+        // -s ~/knx-monitor-summary.txt
+        // --summary ~/knx-monitor-summary.txt
+        final var summaryPath = getParameterValue(args, "-s,--summary", Paths::get, null);
+        log.debug("Session Summary Path: {}", Objects.requireNonNullElse(summaryPath, "<default>"));
+
+        // Get maximum number of rows per second displayed before sampling (example: 500 rows)
+        // -r 500
+        // --max-rows 500
+        final var maxRowsPerSecond = getParameterValue(args, "-r,--max-rows", Integer::parseInt, null);
+        log.debug("Max Rows per Second: {}", Objects.requireNonNullElse(maxRowsPerSecond, "<default>"));
+
+        // Get Mapping Path of group addresses not known by KNX project (loaded at startup)
+        // -m ~/knx-monitor-mapping.txt
+        // --mapping ~/knx-monitor-mapping.txt
+        final var mappingPath = getParameterValue(args, "-m,--mapping", Paths::get, null);
+        log.debug("Mapping Path: {}", Objects.requireNonNullElse(mappingPath, "<default>"));
+
+        // Get Discovery Path where the draft mapping of unknown group addresses is written on shutdown
+        // -d ~/knx-monitor-discovery.txt
+        // --discovery ~/knx-monitor-discovery.txt
+        final var discoveryPath = getParameterValue(args, "-d,--discovery", Paths::get, null);
+        log.debug("Discovery Path: {}", Objects.requireNonNullElse(discoveryPath, "<default>"));
+
         // Create Config
         final var config = parseConfigBuilder(args)
                 // set the path of KNX project file
@@ -108,6 +132,13 @@ public class Main {
                 .setting(FileStatisticPlugin.FORMAT, FileStatisticFormat.TEXT)
                 // defined if the fake data of MonitorPlugin should be generated
                 .setting(MonitorPlugin.GENERATE_FAKE_DATA, generateFakeData)
+                // path where the session summary should be written on shutdown
+                .setting(MonitorPlugin.SUMMARY_PATH, summaryPath)
+                // maximum number of rows per second displayed before sampling
+                .setting(MonitorPlugin.MAX_ROWS_PER_SECOND, maxRowsPerSecond)
+                // mapping file for unknown group addresses (read on startup) and draft mapping (written on shutdown)
+                .setting(MonitorPlugin.MAPPING_PATH, mappingPath)
+                .setting(MonitorPlugin.DISCOVERY_PATH, discoveryPath)
                 .setting(CoreConfigs.Search.REQUEST_TIMEOUT, 1000L)
                 // build an immutable config
                 .build();
@@ -24,6 +24,7 @@ import li.pitschmann.knx.core.plugin.BooleanConfigValue;
 import li.pitschmann.knx.core.plugin.ExtensionPlugin;
 import li.pitschmann.knx.core.plugin.IntegerConfigValue;
 import li.pitschmann.knx.core.plugin.ObserverPlugin;
+import li.pitschmann.knx.core.plugin.PathConfigValue;
 import li.pitschmann.knx.core.utils.ByteFormatter;
 import li.pitschmann.knx.core.utils.Sleeper;
 import li.pitschmann.knx.core.utils.Strings;
@@ -34,6 +35,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.ExecutorService;
@@ -41,6 +45,11 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static li.pitschmann.knx.examples.tty.KnxAddresses.ADDRESS_SPACE;
+import static li.pitschmann.knx.examples.tty.KnxAddresses.formatGroupAddress;
+import static li.pitschmann.knx.examples.tty.KnxAddresses.toDestinationIndex;
+import static li.pitschmann.knx.examples.tty.KnxAddresses.toRawAddress;
+
 /**
  * TTY Monitor Plugin
  * <p>
@@ -49,6 +58,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 public final class MonitorPlugin implements ObserverPlugin, ExtensionPlugin {
     static final BooleanConfigValue GENERATE_FAKE_DATA = new BooleanConfigValue("generate-fake-data", () -> Boolean.FALSE);
     static final IntegerConfigValue GENERATE_FAKE_DATA_INTERVAL = new IntegerConfigValue("generate-interval", () -> 1000, null);
+    static final PathConfigValue SUMMARY_PATH = new PathConfigValue("summary-path", () -> Paths.get("knx-monitor-summary.txt"));
+    static final IntegerConfigValue MAX_ROWS_PER_SECOND = new IntegerConfigValue("max-rows-per-second", () -> 1000, x -> x > 0);
+    static final IntegerConfigValue SUMMARY_TOP_N = new IntegerConfigValue("summary-top", () -> 10, x -> x > 0);
+    static final PathConfigValue DISCOVERY_PATH = new PathConfigValue("discovery-path", () -> Paths.get("knx-monitor-discovery.txt"));
+    static final PathConfigValue MAPPING_PATH = new PathConfigValue("mapping-path", () -> Paths.get("knx-monitor-mapping.txt"));
     private static final Logger log = LoggerFactory.getLogger(MonitorPlugin.class);
     private static final int DEFAULT_SIZE_COLUMN = 80;
     private static final int DEFAULT_SIZE_LINES = 20;
@@ -72,6 +86,14 @@ public final class MonitorPlugin implements ObserverPlugin, ExtensionPlugin {
     private final AtomicBoolean emptyTable = new AtomicBoolean(true);
     private final AtomicInteger numberOfIncomingBodies = new AtomicInteger();
     private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+    /**
+     * Summary of current session, aggregated incrementally and written on shutdown
+     */
+    private final SessionSummary sessionSummary = new SessionSummary();
+    /**
+     * Index of group addresses that are not known by the {@link XmlProject}, built from live traffic
+     */
+    private final UnknownAddressIndex unknownAddressIndex = new UnknownAddressIndex();
     /**
      * <p>If the fake data should be generated. See: {@link FakeDataRunnable}</p>
      * <p>{@code false} = disabled, no fake data will be generated</p>
@@ -82,6 +104,27 @@ public final class MonitorPlugin implements ObserverPlugin, ExtensionPlugin {
      * Defines the interval how frequently the fake data should be generated (in milliseconds).
      */
     private int generateFakeDataInterval;
+    /**
+     * Path where the session summary should be written on shutdown
+     */
+    private Path summaryPath;
+    /**
+     * Number of top sources and destinations in the session summary
+     */
+    private int summaryTopN;
+    /**
+     * Sampler for displaying a sample of telegrams only when the terminal falls behind
+     */
+    private AdaptiveSampler displaySampler;
+    /**
+     * Path where the draft mapping of unknown group addresses should be written on shutdown
+     */
+    private Path discoveryPath;
+    /**
+     * Data point types of group addresses loaded from mapping file, indexed by raw group address.
+     * Used as fallback for group addresses that are not known by the {@link XmlProject}.
+     */
+    private DataPointType[] mapping = new DataPointType[ADDRESS_SPACE];
     private KnxClient knxClient;
     private XmlProject xmlProject;
 
@@ -164,6 +207,29 @@ public final class MonitorPlugin implements ObserverPlugin, ExtensionPlugin {
         this.generateFakeData = knxClient.getConfig(GENERATE_FAKE_DATA);
         this.generateFakeDataInterval = knxClient.getConfig(GENERATE_FAKE_DATA_INTERVAL);
         log.debug("Generate Fake Data: {} (interval: {})", generateFakeData, generateFakeDataInterval);
+
+        // get config for session summary
+        this.summaryPath = knxClient.getConfig(SUMMARY_PATH);
+        this.summaryTopN = knxClient.getConfig(SUMMARY_TOP_N);
+        log.debug("Session Summary: {} (top: {})", summaryPath, summaryTopN);
+
+        // get config for adaptive sampling of display
+        final int maxRowsPerSecond = knxClient.getConfig(MAX_ROWS_PER_SECOND);
+        this.displaySampler = new AdaptiveSampler(maxRowsPerSecond);
+        log.debug("Max Rows per Second: {}", maxRowsPerSecond);
+
+        // get config for discovery of unknown group addresses (incl. mapping file loaded at startup)
+        this.discoveryPath = knxClient.getConfig(DISCOVERY_PATH);
+        final var mappingPath = knxClient.getConfig(MAPPING_PATH);
+        if (mappingPath != null && Files.exists(mappingPath)) {
+            try {
+                this.mapping = UnknownAddressIndex.readMapping(mappingPath);
+                log.info("Mapping file loaded: {}", mappingPath);
+            } catch (final IOException ioe) {
+                log.error("I/O Exception during reading mapping file: {}", mappingPath, ioe);
+            }
+        }
+        log.debug("Discovery File: {}, Mapping File: {}", discoveryPath, mappingPath);
     }
 
     @Override
@@ -192,12 +258,15 @@ public final class MonitorPlugin implements ObserverPlugin, ExtensionPlugin {
         // clear screen
         sb.append("\033[2J");
         out.println(sb.toString());
+
+        writeSessionSummary();
+        writeDraftMapping();
     }
 
     @Override
     public void onIncomingBody(final Body item) {
         if (item instanceof CEMIAware) {
-            printLineInTable(((CEMIAware)item).getCEMI());
+            processCEMI(((CEMIAware)item).getCEMI());
         }
     }
 
@@ -208,6 +277,7 @@ public final class MonitorPlugin implements ObserverPlugin, ExtensionPlugin {
 
     @Override
     public void onError(final Throwable throwable) {
+        sessionSummary.recordError(throwable);
         printToTerminal(String.format("[ ERROR ] %s", throwable.getMessage()), "\033[0;31m");
     }
 
@@ -284,63 +354,138 @@ public final class MonitorPlugin implements ObserverPlugin, ExtensionPlugin {
     }
 
     /**
-     * Print line in table
+     * Processes the {@link CEMI}: records it to the session summary and prints it to the table
+     * unless it has been sampled out by the {@link AdaptiveSampler}
      *
-     * @param cemi the {@link CEMI} instance that should be printed to table
+     * @param cemi the {@link CEMI} instance that should be processed
      */
-    private void printLineInTable(final CEMI cemi) {
+    private void processCEMI(final CEMI cemi) {
+        final var number = numberOfIncomingBodies.incrementAndGet();
         try {
-            final var sb = new StringBuilder();
-            sb.append(String.format("%10s", numberOfIncomingBodies.incrementAndGet()))
-                    .append(" | ")
-                    .append(String.format("%19s", DATE_TIME_FORMATTER.format(LocalDateTime.now())))
-                    .append(" | ");
-
-            final var sourceAddress = cemi.getSourceAddress();
             final var destinationAddress = cemi.getDestinationAddress();
-
-            // source address (always individual)
-            sb.append(String.format("%9s", sourceAddress.getAddress()))
-                    .append(" | ");
-
-            // destination address in proper style
+            final var data = cemi.getData();
+            // only write and response carry a value (e.g. read has no value)
+            final var apci = cemi.getAPCI();
+            final var hasValue = apci == APCI.GROUP_VALUE_WRITE || apci == APCI.GROUP_VALUE_RESPONSE;
+            // raw addresses are derived once per telegram and shared by the aggregates
+            final var rawSource = toRawAddress(cemi.getSourceAddress());
+            final var destinationIndex = toDestinationIndex(destinationAddress);
+
+            // record to session summary first, so totals are exact even if anything below fails
+            sessionSummary.record(apci, rawSource, destinationIndex, data.length);
+
+            // get group address from project
+            XmlGroupAddress xmlGroupAddress = null;
             if (xmlProject != null && destinationAddress instanceof GroupAddress) {
-                sb.append(String.format("%9s", xmlProject.getGroupAddressStyle().toString((GroupAddress) destinationAddress)));
-            } else {
-                sb.append(String.format("%9s", ByteFormatter.formatHexAsString(destinationAddress.toByteArray())));
+                xmlGroupAddress = xmlProject.getGroupAddress((GroupAddress) destinationAddress);
             }
 
             // get data point type
-            XmlGroupAddress xmlGroupAddress;
             DataPointType dpt = null;
-            if (xmlProject != null && destinationAddress instanceof GroupAddress) {
-                xmlGroupAddress = xmlProject.getGroupAddress((GroupAddress) destinationAddress);
-                if (xmlGroupAddress != null) {
-                    final var dptString = xmlGroupAddress.getDataPointType();
-                    if (!Strings.isNullOrEmpty(dptString)) {
-                        dpt = DataPointRegistry.getDataPointType(dptString);
-                    }
+            if (xmlGroupAddress != null) {
+                final var dptString = xmlGroupAddress.getDataPointType();
+                if (!Strings.isNullOrEmpty(dptString)) {
+                    dpt = DataPointRegistry.getDataPointType(dptString);
                 }
+            } else if (destinationAddress instanceof GroupAddress) {
+                // group address not known by project: record to index and fall back to mapping file
+                // (for group addresses the destination index is the raw group address)
+                unknownAddressIndex.record(destinationIndex, rawSource, data, hasValue);
+                dpt = mapping[destinationIndex];
             }
 
-            final var dptString = (dpt == null) ? "n/a" : dpt.getId();
-            sb.append(" | ")
-                    .append(String.format("%8s", dptString))
-                    .append(" | ");
-
             // value of data
-            final String dptValueString;
-            if (dpt != null) {
-                final var dptValue = dpt.of(cemi.getData());
-                dptValueString = String.format("%s %s", dptValue.toText(), dpt.getUnit());
-            } else {
-                dptValueString = ByteFormatter.formatHexAsString(cemi.getData());
+            String dptText = null;
+            if (dpt != null && hasValue) {
+                try {
+                    dptText = dpt.of(data).toText();
+                    sessionSummary.recordValue(dpt, dptText);
+                } catch (final Throwable t) {
+                    log.warn("Could not decode data for DPT '{}': {}", dpt.getId(), ByteFormatter.formatHexAsString(data));
+                    sessionSummary.recordError(t);
+                }
             }
-            sb.append(dptValueString);
 
-            printToTerminal(sb.toString());
+            // print only if not sampled out (under sustained overload)
+            if (displaySampler.shouldDisplay(destinationIndex)) {
+                final var start = System.nanoTime();
+                printLineInTable(number, cemi, dpt, dptText);
+                displaySampler.recordRender(System.nanoTime() - start);
+            }
         } catch (final Throwable t) {
-            log.error("Error during print to terminal", t);
+            log.error("Error during processing CEMI", t);
+            sessionSummary.recordError(t);
+        }
+    }
+
+    /**
+     * Print line in table
+     *
+     * @param number  the sequence number of {@link CEMI}
+     * @param cemi    the {@link CEMI} instance that should be printed to table
+     * @param dpt     the data point type of destination address; may be {@code null} if not known
+     * @param dptText the decoded value as text; may be {@code null} if not known or not decodable
+     */
+    private void printLineInTable(final int number,
+                                  final CEMI cemi,
+                                  final @Nullable DataPointType dpt,
+                                  final @Nullable String dptText) {
+        final var sb = new StringBuilder();
+        sb.append(String.format("%10s", number))
+                .append(" | ")
+                .append(String.format("%19s", DATE_TIME_FORMATTER.format(LocalDateTime.now())))
+                .append(" | ");
+
+        final var sourceAddress = cemi.getSourceAddress();
+        final var destinationAddress = cemi.getDestinationAddress();
+
+        // source address (always individual)
+        sb.append(String.format("%9s", sourceAddress.getAddress()))
+                .append(" | ");
+
+        // destination address in proper style
+        if (xmlProject != null && destinationAddress instanceof GroupAddress) {
+            sb.append(String.format("%9s", xmlProject.getGroupAddressStyle().toString((GroupAddress) destinationAddress)));
+        } else {
+            sb.append(String.format("%9s", ByteFormatter.formatHexAsString(destinationAddress.toByteArray())));
+        }
+
+        final var dptString = (dpt == null) ? "n/a" : dpt.getId();
+        sb.append(" | ")
+                .append(String.format("%8s", dptString))
+                .append(" | ");
+
+        // value of data
+        final String dptValueString;
+        if (dpt != null && dptText != null) {
+            dptValueString = String.format("%s %s", dptText, dpt.getUnit());
+        } else {
+            dptValueString = ByteFormatter.formatHexAsString(cemi.getData());
+        }
+        sb.append(dptValueString);
+
+        printToTerminal(sb.toString());
+    }
+
+    /**
+     * Writes the session summary to {@link #summaryPath}. This is invoked on shutdown and
+     * based on in-memory aggregates only; no re-scan of audit or statistic files.
+     */
+    private void writeSessionSummary() {
+        if (summaryPath == null) {
+            return;
+        }
+        try {
+            final var report = sessionSummary.toReport(xmlProject, summaryTopN, unknownAddressIndex);
+            final var parent = summaryPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(summaryPath, report);
+            log.info("Session summary written to: {}", summaryPath);
+            log.debug("Session summary:{}{}", System.lineSeparator(), report);
+        } catch (final IOException ioe) {
+            log.error("I/O Exception during writing session summary: {}", summaryPath, ioe);
         }
     }
 
@@ -365,7 +510,36 @@ public final class MonitorPlugin implements ObserverPlugin, ExtensionPlugin {
     }
 
     /**
-     * Runnable for updating the time
+     * Writes the index of unknown group addresses as draft mapping file to {@link #discoveryPath}.
+     * The file can be reviewed and loaded at next startup as mapping file.
+     */
+    private void writeDraftMapping() {
+        if (discoveryPath == null || unknownAddressIndex.size() == 0) {
+            return;
+        }
+        try {
+            unknownAddressIndex.writeDraftMapping(discoveryPath, raw -> formatGroupAddress(xmlProject, raw), mapping);
+            log.info("Draft mapping of {} unknown group addresses written to: {}", unknownAddressIndex.size(), discoveryPath);
+        } catch (final IOException ioe) {
+            log.error("I/O Exception during writing draft mapping: {}", discoveryPath, ioe);
+        }
+    }
+
+    /**
+     * Prints the footline with current sampling ratio of {@link AdaptiveSampler}
+     */
+    private synchronized void printFooter() {
+        final var ratio = displaySampler.getRatio();
+        final var samplingStr = ratio == 1
+                ? "Sampling: off"
+                : String.format("Sampling: 1:%s (shown %s of %s)", ratio, displaySampler.getDisplayed(), displaySampler.getArrivals());
+        final var footerPosition = "\033[" + (lines - 1) + ";0H\033[K";
+        final var samplingPosition = "\033[" + Math.max(1, columns - samplingStr.length()) + "G";
+        out.print(String.format("\0338%sPress CTRL+C to quit%s%s\0338", footerPosition, samplingPosition, samplingStr));
+    }
+
+    /**
+     * Runnable for updating the time and the sampling ratio in footer
      */
     private class TimeRunnable implements Runnable {
         @Override
@@ -374,6 +548,10 @@ public final class MonitorPlugin implements ObserverPlugin, ExtensionPlugin {
             do {
                 final var nowStr = DATE_TIME_FORMATTER.format(LocalDateTime.now());
                 out.print(String.format("\0338%s%s\0338", timePosition, nowStr));
+
+                // re-calculate the sampling ratio based on arrival and render rate
+                displaySampler.update();
+                printFooter();
             } while (Sleeper.seconds(1));
         }
     }
@@ -403,7 +581,7 @@ public final class MonitorPlugin implements ObserverPlugin, ExtensionPlugin {
                         APCI.GROUP_VALUE_WRITE,
                         DPT8.VALUE_2_OCTET_COUNT.of(inc * 127)
                 );
-                printLineInTable(cemi);
+                processCEMI(cemi);
             } while (Sleeper.milliseconds(generateFakeDataInterval));
         }
     }
@@ -0,0 +1,298 @@
+/*
+ * KNX Link - A library for KNX Net/IP communication
+ * Copyright (C) 2020 Pitschmann Christoph
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package li.pitschmann.knx.examples.tty;
+
+import li.pitschmann.knx.core.annotations.Nullable;
+import li.pitschmann.knx.core.cemi.APCI;
+import li.pitschmann.knx.core.datapoint.DataPointType;
+import li.pitschmann.knx.core.knxproj.XmlProject;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static li.pitschmann.knx.examples.tty.KnxAddresses.ADDRESS_SPACE;
+import static li.pitschmann.knx.examples.tty.KnxAddresses.formatGroupAddress;
+import static li.pitschmann.knx.examples.tty.KnxAddresses.formatIndividualAddress;
+
+/**
+ * Session Summary for the {@link MonitorPlugin}
+ * <p>
+ * All figures are aggregated incrementally while telegrams are arriving. Addresses are
+ * 16-bit values and are therefore counted in fixed-size arrays indexed by their raw value;
+ * the report can be created in constant time regardless how long the session was running
+ * as no audit or statistic file needs to be re-scanned.
+ *
+ * @author PITSCHR
+ */
+final class SessionSummary {
+    private static final int MAX_UNKNOWN_ADDRESSES_IN_REPORT = 100;
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final LocalDateTime startTime = LocalDateTime.now();
+    private final long[] apciCounts = new long[APCI.values().length];
+    /**
+     * Number of telegrams per source address (always individual), indexed by raw address
+     */
+    private final long[] sourceCounts = new long[ADDRESS_SPACE];
+    /**
+     * Number of telegrams per destination address, indexed by raw address; group addresses
+     * in lower half and individual addresses in upper half
+     */
+    private final long[] destinationCounts = new long[ADDRESS_SPACE * 2];
+    private final Map<String, DptRange> dptRanges = new TreeMap<>();
+    private final Map<String, Long> errorsByType = new TreeMap<>();
+    private long totalTelegrams;
+    private long totalPayloadBytes;
+    private long totalErrors;
+    private long currentSecond = -1;
+    private long currentSecondCount;
+    private long peakRate;
+    private long peakSecond = -1;
+
+    /**
+     * Records a received telegram to the summary. This should be invoked for every telegram
+     * before its data point type is resolved, so that totals are counted exactly even if the
+     * value cannot be decoded.
+     *
+     * @param apci             the {@link APCI} of telegram
+     * @param rawSource        raw value of the source individual address
+     * @param destinationIndex index of destination address, see {@link KnxAddresses#toDestinationIndex}
+     * @param payloadLength    length of payload in bytes
+     */
+    synchronized void record(final APCI apci, final int rawSource, final int destinationIndex, final int payloadLength) {
+        totalTelegrams++;
+        totalPayloadBytes += payloadLength;
+        apciCounts[apci.ordinal()]++;
+
+        // rate per second
+        final var second = System.currentTimeMillis() / 1000;
+        if (second != currentSecond) {
+            currentSecond = second;
+            currentSecondCount = 0;
+        }
+        if (++currentSecondCount > peakRate) {
+            peakRate = currentSecondCount;
+            peakSecond = second;
+        }
+
+        // source and destination
+        sourceCounts[rawSource]++;
+        destinationCounts[destinationIndex]++;
+    }
+
+    /**
+     * Records a successfully decoded value to the value range of its data point type
+     *
+     * @param dpt     the data point type
+     * @param dptText the decoded value as text
+     */
+    synchronized void recordValue(final DataPointType dpt, final String dptText) {
+        dptRanges.computeIfAbsent(dpt.getId(), k -> new DptRange(dpt.getUnit())).update(dptText);
+    }
+
+    /**
+     * Records an error to the summary
+     *
+     * @param throwable the error that occurred
+     */
+    synchronized void recordError(final Throwable throwable) {
+        totalErrors++;
+        errorsByType.merge(throwable.getClass().getSimpleName(), 1L, Long::sum);
+    }
+
+    /**
+     * Creates the report of the current session
+     *
+     * @param xmlProject          the {@link XmlProject} to format group addresses in project style; may be {@code null}
+     * @param topN                number of top sources and destinations to be reported
+     * @param unknownAddressIndex the {@link UnknownAddressIndex} of group addresses not known by the {@link XmlProject}
+     * @return report in human-friendly text format
+     */
+    synchronized String toReport(final @Nullable XmlProject xmlProject, final int topN, final UnknownAddressIndex unknownAddressIndex) {
+        final var now = LocalDateTime.now();
+        final var sb = new StringBuilder(4096);
+        final var nl = System.lineSeparator();
+
+        sb.append("KNX MONITOR SESSION SUMMARY").append(nl);
+        sb.append("===========================").append(nl);
+        sb.append(String.format("Started:               %s", DATE_TIME_FORMATTER.format(startTime))).append(nl);
+        sb.append(String.format("Stopped:               %s", DATE_TIME_FORMATTER.format(now))).append(nl);
+        sb.append(String.format("Duration:              %s", MainHelper.toHumanTimeFormat(ChronoUnit.SECONDS.between(startTime, now)))).append(nl);
+        sb.append(nl);
+
+        // Totals
+        sb.append("Totals").append(nl);
+        sb.append("------").append(nl);
+        sb.append(String.format("Telegrams:             %d", totalTelegrams)).append(nl);
+        sb.append(String.format("Payload Bytes:         %d", totalPayloadBytes)).append(nl);
+        for (final var apci : APCI.values()) {
+            if (apciCounts[apci.ordinal()] > 0) {
+                sb.append(String.format("  %-20s %d", apci.name() + ":", apciCounts[apci.ordinal()])).append(nl);
+            }
+        }
+        sb.append(String.format("Peak Rate:             %d telegrams/second", peakRate));
+        if (peakSecond >= 0) {
+            sb.append(String.format(" (at %s)", DATE_TIME_FORMATTER.format(
+                    LocalDateTime.ofInstant(Instant.ofEpochSecond(peakSecond), ZoneId.systemDefault()))));
+        }
+        sb.append(nl).append(nl);
+
+        // Top Sources and Destinations
+        sb.append(String.format("Top %d Sources", topN)).append(nl);
+        sb.append("-------------").append(nl);
+        for (final var index : topIndices(sourceCounts, topN)) {
+            sb.append(String.format("  %-10s %d", formatIndividualAddress(index), sourceCounts[index])).append(nl);
+        }
+        sb.append(nl);
+        sb.append(String.format("Top %d Destinations", topN)).append(nl);
+        sb.append("------------------").append(nl);
+        for (final var index : topIndices(destinationCounts, topN)) {
+            final var address = index < ADDRESS_SPACE
+                    ? formatGroupAddress(xmlProject, index)
+                    : formatIndividualAddress(index - ADDRESS_SPACE);
+            sb.append(String.format("  %-10s %d", address, destinationCounts[index])).append(nl);
+        }
+        sb.append(nl);
+
+        // Value ranges per DPT
+        sb.append("Value Ranges per DPT").append(nl);
+        sb.append("--------------------").append(nl);
+        for (final var entry : dptRanges.entrySet()) {
+            sb.append(String.format("  %-10s %s", entry.getKey(), entry.getValue())).append(nl);
+        }
+        sb.append(nl);
+
+        // Unknown Group Addresses
+        sb.append(String.format("Unknown Group Addresses: %d (%d telegrams)", unknownAddressIndex.size(), unknownAddressIndex.getTotalCount())).append(nl);
+        sb.append("-----------------------").append(nl);
+        unknownAddressIndex.appendTo(sb, raw -> formatGroupAddress(xmlProject, raw), MAX_UNKNOWN_ADDRESSES_IN_REPORT);
+        sb.append(nl);
+
+        // Errors
+        sb.append(String.format("Errors: %d", totalErrors)).append(nl);
+        sb.append("------").append(nl);
+        for (final var entry : errorsByType.entrySet()) {
+            sb.append(String.format("  %-30s %d", entry.getKey(), entry.getValue())).append(nl);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns indices of the {@code n} highest non-zero counts in descending order. The scan is
+     * bound to the length of the array (= address space) and not to the session length.
+     *
+     * @param counts array of counts
+     * @param n      number of indices to be returned
+     * @return array of indices
+     */
+    private static int[] topIndices(final long[] counts, final int n) {
+        final var indices = new int[n];
+        var size = 0;
+        for (var i = 0; i < counts.length; i++) {
+            final var count = counts[i];
+            if (count == 0 || (size == n && count <= counts[indices[n - 1]])) {
+                continue;
+            }
+            // insertion into sorted (descending) array
+            var pos = size < n ? size++ : n - 1;
+            while (pos > 0 && counts[indices[pos - 1]] < count) {
+                indices[pos] = indices[pos - 1];
+                pos--;
+            }
+            indices[pos] = i;
+        }
+        return Arrays.copyOf(indices, size);
+    }
+
+    /**
+     * Range of values per data point type. Numeric values are tracked as min/max,
+     * non-numeric values are counted by their distinct text (up to a small limit).
+     */
+    private static final class DptRange {
+        private static final int MAX_DISTINCT_TEXTS = 10;
+        private final String unit;
+        private final Map<String, Long> texts = new HashMap<>();
+        private long count;
+        private long numericCount;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        private DptRange(final String unit) {
+            this.unit = unit;
+        }
+
+        private void update(final String text) {
+            count++;
+            if (isNumeric(text)) {
+                final var value = Double.parseDouble(text);
+                numericCount++;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            } else if (texts.size() < MAX_DISTINCT_TEXTS || texts.containsKey(text)) {
+                texts.merge(text, 1L, Long::sum);
+            }
+        }
+
+        /**
+         * Cheap check if the text can be parsed as a number (avoids exceptions per telegram)
+         *
+         * @param text the text to be checked
+         * @return {@code true} if numeric, otherwise {@code false}
+         */
+        private static boolean isNumeric(final String text) {
+            if (text.isEmpty()) {
+                return false;
+            }
+            var digits = 0;
+            var dots = 0;
+            for (var i = 0; i < text.length(); i++) {
+                final var c = text.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    digits++;
+                } else if (c == '.') {
+                    dots++;
+                } else if (!((c == '-' || c == '+') && i == 0)) {
+                    return false;
+                }
+            }
+            return digits > 0 && dots <= 1;
+        }
+
+        @Override
+        public String toString() {
+            final var sb = new StringBuilder();
+            sb.append(String.format("count=%d", count));
+            if (numericCount > 0) {
+                sb.append(String.format(", min=%s %s, max=%s %s", min, unit, max, unit));
+            }
+            if (!texts.isEmpty()) {
+                sb.append(", values=").append(texts);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,467 @@
+/*
+ * KNX Link - A library for KNX Net/IP communication
+ * Copyright (C) 2020 Pitschmann Christoph
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package li.pitschmann.knx.examples.tty;
+
+import li.pitschmann.knx.core.address.GroupAddress;
+import li.pitschmann.knx.core.annotations.Nullable;
+import li.pitschmann.knx.core.datapoint.DataPointRegistry;
+import li.pitschmann.knx.core.datapoint.DataPointType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static li.pitschmann.knx.examples.tty.KnxAddresses.ADDRESS_SPACE;
+import static li.pitschmann.knx.examples.tty.KnxAddresses.formatIndividualAddress;
+import static li.pitschmann.knx.examples.tty.KnxAddresses.toRawAddress;
+
+/**
+ * Discovery Index of group addresses that are not known by the KNX project
+ * <p>
+ * For every unknown group address the first and last seen time, the senders, the payload
+ * length, the number of telegrams and some value patterns are collected. Based on them a
+ * data point type is guessed and the index can be exported as a draft mapping file, which
+ * can be loaded by the monitor at startup via {@link #readMapping(Path)}.
+ * <p>
+ * The index is a primitive map: the raw 16-bit group address points to a slot in parallel
+ * primitive arrays. Arrays grow only when a new group address is discovered, so there is
+ * no allocation per telegram.
+ *
+ * @author PITSCHR
+ */
+final class UnknownAddressIndex {
+    private static final Logger log = LoggerFactory.getLogger(UnknownAddressIndex.class);
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAX_SENDERS = 4;
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // value patterns (bit is set when a payload did NOT match the pattern)
+    private static final int PATTERN_NOT_FLOAT_2_OCTET = 1;
+    private static final int PATTERN_NOT_TEMPERATURE = 1 << 1;
+    private static final int PATTERN_NOT_TIME = 1 << 2;
+    private static final int PATTERN_NOT_DATE = 1 << 3;
+    private static final int PATTERN_NOT_FLOAT_4_OCTET = 1 << 4;
+
+    /**
+     * Slot (+1) per raw group address; {@code 0} means the group address is not indexed yet
+     */
+    private final int[] slotByAddress = new int[ADDRESS_SPACE];
+    private int size;
+    private int[] addresses = new int[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private long[] firstSeen = new long[INITIAL_CAPACITY];
+    private long[] lastSeen = new long[INITIAL_CAPACITY];
+    private int[] minLength = new int[INITIAL_CAPACITY];
+    private int[] maxLength = new int[INITIAL_CAPACITY];
+    /**
+     * Maximum unsigned value of payloads up to 4 bytes
+     */
+    private long[] maxValues = new long[INITIAL_CAPACITY];
+    /**
+     * Bit mask of value patterns, see {@code PATTERN_*} constants
+     */
+    private int[] patterns = new int[INITIAL_CAPACITY];
+    /**
+     * Senders (raw individual addresses), {@link #MAX_SENDERS} per slot
+     */
+    private int[] senders = new int[INITIAL_CAPACITY * MAX_SENDERS];
+    /**
+     * Number of distinct senders stored per slot; {@code MAX_SENDERS + 1} indicates that
+     * there are more senders than stored (only first senders are stored)
+     */
+    private int[] senderCounts = new int[INITIAL_CAPACITY];
+
+    /**
+     * Records the telegram for an unknown group address
+     *
+     * @param rawDestination raw value of the destination group address
+     * @param rawSource      raw value of the source individual address
+     * @param data           payload of telegram
+     * @param hasValue       {@code true} if the telegram carries a value (group value write/response);
+     *                       only those are taken for payload length and value patterns
+     */
+    synchronized void record(final int rawDestination, final int rawSource, final byte[] data, final boolean hasValue) {
+        final var now = System.currentTimeMillis();
+        var slot = slotByAddress[rawDestination] - 1;
+        if (slot < 0) {
+            slot = addSlot(rawDestination, now);
+        }
+
+        counts[slot]++;
+        lastSeen[slot] = now;
+
+        // senders
+        final var senderCount = senderCounts[slot];
+        final var offset = slot * MAX_SENDERS;
+        var known = false;
+        for (var i = 0; i < Math.min(senderCount, MAX_SENDERS); i++) {
+            if (senders[offset + i] == rawSource) {
+                known = true;
+                break;
+            }
+        }
+        if (!known) {
+            if (senderCount < MAX_SENDERS) {
+                senders[offset + senderCount] = rawSource;
+                senderCounts[slot]++;
+            } else {
+                senderCounts[slot] = MAX_SENDERS + 1;
+            }
+        }
+
+        // payload length and value patterns (e.g. group value read has no value)
+        if (!hasValue) {
+            return;
+        }
+        minLength[slot] = Math.min(minLength[slot], data.length);
+        maxLength[slot] = Math.max(maxLength[slot], data.length);
+        if (data.length <= 4) {
+            long value = 0;
+            for (final var b : data) {
+                value = (value << 8) | (b & 0xFF);
+            }
+            maxValues[slot] = Math.max(maxValues[slot], value);
+            patterns[slot] |= toNonMatchingPatterns(data, (int) value);
+        }
+    }
+
+    /**
+     * Returns the number of indexed group addresses
+     *
+     * @return number of unknown group addresses
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the total number of telegrams of all indexed group addresses
+     *
+     * @return number of telegrams
+     */
+    synchronized long getTotalCount() {
+        var total = 0L;
+        for (var i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Appends a line per unknown group address (sorted by address) to given {@link StringBuilder}
+     *
+     * @param sb        the {@link StringBuilder} to append to
+     * @param formatter formatter of raw group address
+     * @param limit     maximum number of group addresses to be appended
+     */
+    synchronized void appendTo(final StringBuilder sb, final GroupAddressFormatter formatter, final int limit) {
+        final var sortedSlots = sortedSlots();
+        for (var i = 0; i < sortedSlots.length; i++) {
+            if (i == limit) {
+                sb.append("  ...").append(System.lineSeparator());
+                break;
+            }
+            final var slot = sortedSlots[i];
+            sb.append(String.format("  %-10s %-8s %s", formatter.format(addresses[slot]),
+                    Objects.requireNonNullElse(guessDataPointTypeId(slot), "n/a"), toDetails(slot)))
+                    .append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Writes the index as a draft mapping file. Each unknown group address is written as
+     * {@code <group address>=<guessed data point type>} with its observations as comment.
+     * If the data point type could not be guessed, the line is commented out.
+     * <p>
+     * Group addresses already present in the loaded {@code mapping} keep their (reviewed) data
+     * point type and are written even if they were not seen in this session, so the draft
+     * mapping can safely replace the mapping file.
+     *
+     * @param path      path of the draft mapping file
+     * @param formatter formatter of raw group address
+     * @param mapping   data point types of loaded mapping file, indexed by raw group address
+     * @throws IOException if the file could not be written
+     */
+    void writeDraftMapping(final Path path, final GroupAddressFormatter formatter, final DataPointType[] mapping) throws IOException {
+        final var nl = System.lineSeparator();
+        final var sb = new StringBuilder(4096);
+        sb.append("# KNX Monitor - Draft mapping of group addresses not known by the KNX project").append(nl);
+        sb.append("# Format: <group address>=<data point type>").append(nl);
+        sb.append("# Please review the guessed data point types before using this file as mapping").append(nl);
+        synchronized (this) {
+            for (var address = 0; address < ADDRESS_SPACE; address++) {
+                final var slot = slotByAddress[address] - 1;
+                final var mappedDpt = mapping[address];
+                if (slot < 0 && mappedDpt == null) {
+                    continue;
+                }
+
+                final String dptId;
+                sb.append(nl).append("# ").append(slot < 0 ? "not seen" : toDetails(slot));
+                if (mappedDpt != null) {
+                    dptId = mappedDpt.getId();
+                    sb.append(" (mapped)");
+                } else {
+                    dptId = guessDataPointTypeId(slot);
+                }
+                sb.append(nl);
+                if (dptId == null) {
+                    sb.append('#');
+                }
+                sb.append(formatter.format(address)).append('=').append(dptId == null ? "" : dptId).append(nl);
+            }
+        }
+
+        final var parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(path, sb.toString());
+    }
+
+    /**
+     * Reads the mapping file (see {@link #writeDraftMapping(Path, GroupAddressFormatter, DataPointType[])}) and
+     * returns the data point types indexed by raw group address. Lines that cannot be parsed
+     * are skipped.
+     *
+     * @param path path of the mapping file
+     * @return array of data point types indexed by raw group address; entry is {@code null} if not mapped
+     * @throws IOException if the file could not be read
+     */
+    static DataPointType[] readMapping(final Path path) throws IOException {
+        final var mapping = new DataPointType[ADDRESS_SPACE];
+        for (final var line : Files.readAllLines(path)) {
+            final var trimmedLine = line.trim();
+            if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+                continue;
+            }
+            final var separator = trimmedLine.indexOf('=');
+            try {
+                final var rawAddress = parseGroupAddress(trimmedLine.substring(0, Math.max(separator, 0)).trim());
+                mapping[rawAddress] = DataPointRegistry.getDataPointType(trimmedLine.substring(separator + 1).trim());
+            } catch (final RuntimeException e) {
+                log.warn("Could not parse line of mapping file '{}': {}", path, line);
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * Parses the group address in 3-level ({@code main/middle/sub}), 2-level ({@code main/sub})
+     * or free-level ({@code address}) style
+     *
+     * @param address the group address as string
+     * @return raw value of group address
+     */
+    private static int parseGroupAddress(final String address) {
+        final var parts = address.split("/");
+        if (parts.length == 3) {
+            return toRawAddress(GroupAddress.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+        } else if (parts.length == 2) {
+            return toRawAddress(GroupAddress.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])));
+        } else if (parts.length == 1) {
+            final var raw = Integer.parseInt(parts[0]);
+            if (raw < 0 || raw >= ADDRESS_SPACE) {
+                throw new IllegalArgumentException("Group address out of range: " + address);
+            }
+            return raw;
+        }
+        throw new IllegalArgumentException("Unsupported group address: " + address);
+    }
+
+    private int addSlot(final int rawDestination, final long now) {
+        if (size == addresses.length) {
+            final var capacity = size * 2;
+            addresses = Arrays.copyOf(addresses, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            firstSeen = Arrays.copyOf(firstSeen, capacity);
+            lastSeen = Arrays.copyOf(lastSeen, capacity);
+            minLength = Arrays.copyOf(minLength, capacity);
+            maxLength = Arrays.copyOf(maxLength, capacity);
+            maxValues = Arrays.copyOf(maxValues, capacity);
+            patterns = Arrays.copyOf(patterns, capacity);
+            senders = Arrays.copyOf(senders, capacity * MAX_SENDERS);
+            senderCounts = Arrays.copyOf(senderCounts, capacity);
+        }
+        final var slot = size++;
+        slotByAddress[rawDestination] = slot + 1;
+        addresses[slot] = rawDestination;
+        firstSeen[slot] = now;
+        // no value seen yet
+        minLength[slot] = Integer.MAX_VALUE;
+        maxLength[slot] = -1;
+        return slot;
+    }
+
+    /**
+     * Returns the patterns the payload does not match with
+     *
+     * @param data  payload (up to 4 bytes)
+     * @param value payload as unsigned value
+     * @return bit mask of non-matching patterns
+     */
+    private static int toNonMatchingPatterns(final byte[] data, final int value) {
+        var nonMatching = 0;
+        if (data.length == 2) {
+            // KNX 2-octet float: MEEEEMMM MMMMMMMM (0x7FFF = invalid data)
+            final var exponent = (value >>> 11) & 0x0F;
+            final var mantissa = (value & 0x7FF) - ((value & 0x8000) == 0 ? 0 : 2048);
+            final var floatValue = 0.01d * mantissa * (1 << exponent);
+            // encoders normalise the value: exponent is only raised when the mantissa would overflow
+            if (value == 0x7FFF || (exponent > 0 && Math.abs(mantissa) < 1024)) {
+                nonMatching |= PATTERN_NOT_FLOAT_2_OCTET;
+            }
+            if (floatValue < -30 || floatValue > 80) {
+                nonMatching |= PATTERN_NOT_TEMPERATURE;
+            }
+        } else if (data.length == 3) {
+            // time: day (3 bits) + hour (5 bits), minute, second
+            if ((data[0] & 0x1F) > 23 || (data[1] & 0xFF) > 59 || (data[2] & 0xFF) > 59) {
+                nonMatching |= PATTERN_NOT_TIME;
+            }
+            // date: day (1-31), month (1-12), year (0-99)
+            final var day = data[0] & 0x1F;
+            final var month = data[1] & 0x0F;
+            if ((data[0] & 0xE0) != 0 || (data[1] & 0xF0) != 0 || day < 1 || month < 1 || month > 12 || (data[2] & 0xFF) > 99) {
+                nonMatching |= PATTERN_NOT_DATE;
+            }
+        } else if (data.length == 4) {
+            final var floatValue = Float.intBitsToFloat(value);
+            final var absValue = Math.abs(floatValue);
+            if (!Float.isFinite(floatValue) || (absValue != 0 && (absValue < 1e-6 || absValue > 1e9))) {
+                nonMatching |= PATTERN_NOT_FLOAT_4_OCTET;
+            }
+        }
+        return nonMatching;
+    }
+
+    /**
+     * Guesses the data point type based on payload length and value patterns
+     *
+     * @param slot the slot in index
+     * @return id of guessed data point type, or {@code null} if no guess possible
+     */
+    @Nullable
+    private String guessDataPointTypeId(final int slot) {
+        if (maxLength[slot] < 0 || minLength[slot] != maxLength[slot]) {
+            // no value seen yet or inconsistent payload length
+            return null;
+        }
+        final var pattern = patterns[slot];
+        switch (minLength[slot]) {
+            case 1:
+                if (maxValues[slot] <= 1) {
+                    return "1.001";
+                } else if (maxValues[slot] <= 0x0F) {
+                    return "3.007";
+                }
+                return "5.001";
+            case 2:
+                if ((pattern & (PATTERN_NOT_FLOAT_2_OCTET | PATTERN_NOT_TEMPERATURE)) == 0) {
+                    return "9.001";
+                } else if ((pattern & PATTERN_NOT_FLOAT_2_OCTET) == 0) {
+                    return "9.004";
+                }
+                return "7.001";
+            case 3:
+                // date is the stricter pattern: a time rules itself out as soon as minute is above 12
+                if ((pattern & PATTERN_NOT_DATE) == 0) {
+                    return "11.001";
+                } else if ((pattern & PATTERN_NOT_TIME) == 0) {
+                    return "10.001";
+                }
+                return "232.600";
+            case 4:
+                return (pattern & PATTERN_NOT_FLOAT_4_OCTET) == 0 ? "14.000" : "12.001";
+            case 14:
+                return "16.000";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the observations of slot as human-readable text
+     *
+     * @param slot the slot in index
+     * @return details of slot
+     */
+    private String toDetails(final int slot) {
+        final var sb = new StringBuilder(128);
+        sb.append("count=").append(counts[slot]);
+        sb.append(", first=").append(formatTime(firstSeen[slot]));
+        sb.append(", last=").append(formatTime(lastSeen[slot]));
+        if (maxLength[slot] < 0) {
+            sb.append(", length=n/a");
+        } else {
+            sb.append(", length=").append(minLength[slot]);
+            if (minLength[slot] != maxLength[slot]) {
+                sb.append("..").append(maxLength[slot]);
+            }
+        }
+        sb.append(", senders=");
+        final var offset = slot * MAX_SENDERS;
+        for (var i = 0; i < Math.min(senderCounts[slot], MAX_SENDERS); i++) {
+            final var sender = senders[offset + i];
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(formatIndividualAddress(sender));
+        }
+        if (senderCounts[slot] > MAX_SENDERS) {
+            sb.append(" (+more)");
+        }
+        return sb.toString();
+    }
+
+    private static String formatTime(final long epochMillis) {
+        return DATE_TIME_FORMATTER.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()));
+    }
+
+    /**
+     * Returns the slots sorted by raw group address
+     *
+     * @return array of slots
+     */
+    private int[] sortedSlots() {
+        final var sortedSlots = new int[size];
+        var i = 0;
+        for (var address = 0; address < ADDRESS_SPACE; address++) {
+            if (slotByAddress[address] != 0) {
+                sortedSlots[i++] = slotByAddress[address] - 1;
+            }
+        }
+        return sortedSlots;
+    }
+
+    /**
+     * Formatter of raw group address
+     */
+    @FunctionalInterface
+    interface GroupAddressFormatter {
+        String format(int rawAddress);
+    }
+}